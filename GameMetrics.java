@@ -0,0 +1,278 @@
+package it.uniba.app;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Raccoglie contatori e latenze dei comandi di una {@link Game partita}
+ * e il tempo di riempimento delle griglie, esponendoli tramite JMX.
+ * La registrazione di una misura usa solo operazioni atomiche: non prende lock e non crea oggetti.
+ */
+public class GameMetrics implements GameMetricsMBean {
+    /**
+     * Comandi misurati; l'ultima voce raccoglie i comandi non riconosciuti.
+     */
+    private static final String[] COMMANDS = {
+        "/help", "/esci", "/mostralivello", "/mostranavi", "/svelagriglia",
+        "/mostratentativi", "/abbandona", "/tempo", "/mostratempo", "altro"
+    };
+    /**
+     * Posizione riservata al riempimento delle griglie, dopo quelle dei comandi.
+     */
+    private static final int FILL = COMMANDS.length;
+    /**
+     * Numero di misure distinte: un comando per posizione più il riempimento.
+     */
+    private static final int SLOTS = COMMANDS.length + 1;
+    /**
+     * Numero di fasce dell'istogramma: la fascia b contiene le durate in [2^(b-1), 2^b) nanosecondi.
+     */
+    private static final int BUCKETS = Long.SIZE;
+    /**
+     * Percentile riportato nelle metriche.
+     */
+    private static final double P99 = 0.99;
+    /**
+     * Progressivo usato per dare un nome JMX univoco a ogni partita.
+     */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /**
+     * Partita di cui si leggono turno e tentativi.
+     */
+    private final Game game;
+    /**
+     * Numero di misure registrate per posizione.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    /**
+     * Somma delle durate registrate per posizione, in nanosecondi.
+     */
+    private final AtomicLongArray totals = new AtomicLongArray(SLOTS);
+    /**
+     * Istogrammi delle durate, {@link #BUCKETS} fasce per posizione.
+     */
+    private final AtomicLongArray histogram = new AtomicLongArray(SLOTS * BUCKETS);
+    /**
+     * Nome con cui le metriche sono registrate, null se non sono registrate.
+     */
+    private volatile ObjectName objectName;
+
+    /**
+     * Crea le metriche della partita indicata.
+     * @param metricsGame Partita da misurare
+     */
+    public GameMetrics(final Game metricsGame) {
+        this.game = metricsGame;
+    }
+
+    /**
+     * Registra la durata di un comando.
+     * @param command Nome del comando eseguito
+     * @param nanos Durata in nanosecondi
+     */
+    public void recordCommand(final String command, final long nanos) {
+        record(commandIndex(command), nanos);
+    }
+
+    /**
+     * Registra la durata di un riempimento di griglia.
+     * @param nanos Durata in nanosecondi
+     * @see Grid#ensureRandomFill()
+     */
+    public void recordFill(final long nanos) {
+        record(FILL, nanos);
+    }
+
+    /**
+     * Registra le metriche sul server JMX della piattaforma, se non sono già registrate.
+     * @return true se le metriche sono registrate, false se la registrazione non è riuscita
+     */
+    public synchronized boolean register() {
+        if (this.objectName != null) {
+            return true;
+        }
+        try {
+            ObjectName name = new ObjectName("it.uniba.app:type=Game,name=game-" + SEQUENCE.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.objectName = name;
+            return true;
+        } catch (JMException exc) {
+            return false;
+        }
+    }
+
+    /**
+     * Rimuove le metriche dal server JMX della piattaforma, se registrate.
+     */
+    public synchronized void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException exc) {
+            // gia' rimosse: non c'e' altro da fare
+        }
+        this.objectName = null;
+    }
+
+    @Override
+    public int getRound() {
+        return this.game.getRound();
+    }
+
+    @Override
+    public int getDoneAttempts() {
+        return this.game.getDoneAttempts();
+    }
+
+    @Override
+    public int getRemainingAttempts() {
+        return this.game.remainingAttempts();
+    }
+
+    @Override
+    public String[] getCommandNames() {
+        return COMMANDS.clone();
+    }
+
+    @Override
+    public long[] getCommandCounts() {
+        long[] out = new long[COMMANDS.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = this.counts.get(i);
+        }
+        return out;
+    }
+
+    @Override
+    public long[] getCommandMeanNanos() {
+        long[] out = new long[COMMANDS.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = mean(i);
+        }
+        return out;
+    }
+
+    @Override
+    public long[] getCommandP99Nanos() {
+        long[] out = new long[COMMANDS.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = percentile(i, P99);
+        }
+        return out;
+    }
+
+    @Override
+    public long getFillCount() {
+        return this.counts.get(FILL);
+    }
+
+    @Override
+    public long getFillMeanNanos() {
+        return mean(FILL);
+    }
+
+    @Override
+    public long getFillP99Nanos() {
+        return percentile(FILL, P99);
+    }
+
+    @Override
+    public String getSnapshot() {
+        StringBuilder out = new StringBuilder();
+        out.append("Round: ").append(getRound())
+                .append("\nTentativi effettuati: ").append(getDoneAttempts())
+                .append("\nTentativi rimasti: ").append(getRemainingAttempts())
+                .append('\n');
+        out.append(String.format("%-18s %10s %14s %14s%n", "Misura", "Conteggio", "Media (ns)", "p99 (ns)"));
+        for (int i = 0; i < SLOTS; i++) {
+            String name = i == FILL ? "riempimento" : COMMANDS[i];
+            out.append(String.format("%-18s %10d %14d %14d%n", name, this.counts.get(i), mean(i), percentile(i, P99)));
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < SLOTS; i++) {
+            this.counts.set(i, 0);
+            this.totals.set(i, 0);
+        }
+        for (int i = 0; i < this.histogram.length(); i++) {
+            this.histogram.set(i, 0);
+        }
+    }
+
+    /**
+     * Aggiorna contatore, somma e istogramma di una posizione.
+     * @param slot Posizione della misura
+     * @param nanos Durata in nanosecondi
+     */
+    private void record(final int slot, final long nanos) {
+        long value = Math.max(0, nanos);
+        int bucket = Long.SIZE - Long.numberOfLeadingZeros(value);
+        this.counts.incrementAndGet(slot);
+        this.totals.addAndGet(slot, value);
+        this.histogram.incrementAndGet(slot * BUCKETS + Math.min(bucket, BUCKETS - 1));
+    }
+
+    /**
+     * Calcola la durata media di una posizione.
+     * @param slot Posizione della misura
+     * @return Durata media in nanosecondi, 0 se non ci sono misure
+     */
+    private long mean(final int slot) {
+        long count = this.counts.get(slot);
+        return count == 0 ? 0 : this.totals.get(slot) / count;
+    }
+
+    /**
+     * Stima un percentile di una posizione dal suo istogramma.
+     * @param slot Posizione della misura
+     * @param fraction Percentile come frazione in ]0, 1]
+     * @return Limite superiore della fascia che contiene il percentile, in nanosecondi
+     */
+    private long percentile(final int slot, final double fraction) {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += this.histogram.get(slot * BUCKETS + b);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += this.histogram.get(slot * BUCKETS + b);
+            if (seen >= target) {
+                return b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Restituisce la posizione di un comando in {@link #COMMANDS}.
+     * @param command Nome del comando
+     * @return Posizione del comando, quella di "altro" se non è riconosciuto
+     */
+    private static int commandIndex(final String command) {
+        return switch (command) {
+            case "/help" -> 0;
+            case "/esci" -> 1;
+            case "/mostralivello" -> 2;
+            case "/mostranavi" -> 3;
+            case "/svelagriglia" -> 4;
+            case "/mostratentativi" -> 5;
+            case "/abbandona" -> 6;
+            case "/tempo" -> 7;
+            case "/mostratempo" -> 8;
+            default -> COMMANDS.length - 1;
+        };
+    }
+}
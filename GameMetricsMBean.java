@@ -0,0 +1,81 @@
+package it.uniba.app;
+
+/**
+ * Interfaccia JMX con cui {@link GameMetrics} espone le metriche di una {@link Game partita}.
+ */
+public interface GameMetricsMBean {
+    /**
+     * Restituisce il turno attuale della partita.
+     * @return Numero del round
+     * @see Game#getRound()
+     */
+    int getRound();
+
+    /**
+     * Restituisce i tentativi già effettuati.
+     * @return Tentativi effettuati
+     * @see Game#getDoneAttempts()
+     */
+    int getDoneAttempts();
+
+    /**
+     * Restituisce i tentativi ancora a disposizione.
+     * @return Tentativi rimanenti, -1 se il livello di difficoltà non è stato impostato
+     * @see Game#getRemainingAttempts()
+     */
+    int getRemainingAttempts();
+
+    /**
+     * Restituisce i nomi dei comandi misurati, nello stesso ordine degli altri array.
+     * @return Nomi dei comandi
+     */
+    String[] getCommandNames();
+
+    /**
+     * Restituisce quante volte è stato eseguito ogni comando.
+     * @return Esecuzioni per comando
+     */
+    long[] getCommandCounts();
+
+    /**
+     * Restituisce la latenza media di ogni comando.
+     * @return Latenza media per comando, in nanosecondi
+     */
+    long[] getCommandMeanNanos();
+
+    /**
+     * Restituisce il 99° percentile della latenza di ogni comando.
+     * @return Limite superiore del 99° percentile per comando, in nanosecondi
+     */
+    long[] getCommandP99Nanos();
+
+    /**
+     * Restituisce quante volte è stata riempita una griglia.
+     * @return Numero di riempimenti
+     * @see Grid#ensureRandomFill()
+     */
+    long getFillCount();
+
+    /**
+     * Restituisce il tempo medio di riempimento di una griglia.
+     * @return Tempo medio, in nanosecondi
+     */
+    long getFillMeanNanos();
+
+    /**
+     * Restituisce il 99° percentile del tempo di riempimento di una griglia.
+     * @return Limite superiore del 99° percentile, in nanosecondi
+     */
+    long getFillP99Nanos();
+
+    /**
+     * Restituisce una tabella testuale con tutte le metriche.
+     * @return Istantanea delle metriche
+     */
+    String getSnapshot();
+
+    /**
+     * Azzera contatori e istogrammi.
+     */
+    void reset();
+}
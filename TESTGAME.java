@@ -1,16 +1,94 @@
 package it.uniba.app;
 import it.uniba.app.Ships.Ship;
 import it.uniba.exceptions.gameExcs.IllegalDifficultyException;
-import it.uniba.exceptions.gridExcs.SvelaGrigliaException;
-import it.uniba.exceptions.gameExcs.InexistentGameException;
 
-import java.util.Scanner;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Rappresenta la partita da giocare.
  */
 public class Game {
+    /**
+     * Stati in cui può trovarsi la partita.
+     */
+    public enum GameState {
+        /**
+         * Nessuna partita avviata.
+         */
+        NOT_STARTED,
+        /**
+         * Partita avviata, in attesa della scelta della difficoltà.
+         */
+        CHOOSING_DIFFICULTY,
+        /**
+         * Partita in corso.
+         */
+        IN_PLAY,
+        /**
+         * Partita terminata con la vittoria del giocatore.
+         */
+        WON,
+        /**
+         * Partita terminata con la sconfitta del giocatore.
+         */
+        LOST,
+        /**
+         * Partita abbandonata dal giocatore.
+         */
+        ABANDONED
+    }
+
+    /**
+     * Esiti dei comandi eseguiti durante la partita.
+     * Le istanze sono preallocate, per cui un comando rifiutato non crea oggetti.
+     */
+    public enum CommandResult {
+        /**
+         * Comando eseguito, l'eventuale output è già stato mostrato.
+         */
+        DONE(null),
+        /**
+         * Il comando richiede una partita in corso.
+         */
+        NO_GAME("Nessuna partita in corso."),
+        /**
+         * Il comando non esiste.
+         */
+        INVALID_COMMAND("Comando non valido."),
+        /**
+         * Dopo il comando non è stato inserito un numero.
+         */
+        NOT_A_NUMBER("Dopo il comando inserire un numero."),
+        /**
+         * Il numero di minuti inserito non è valido.
+         */
+        INVALID_TIME("Inserisci un numero di minuti valido dopo lo spazio.");
+
+        /**
+         * Messaggio da mostrare all'utente, null se non c'è nulla da mostrare.
+         */
+        private final String message;
+
+        /**
+         * Associa all'esito il messaggio da mostrare.
+         * @param resultMessage Messaggio da mostrare all'utente
+         */
+        CommandResult(final String resultMessage) {
+            this.message = resultMessage;
+        }
+
+        /**
+         * Restituisce il messaggio da mostrare all'utente.
+         * @return Messaggio dell'esito, null se non c'è nulla da mostrare
+         */
+        public String getMessage() {
+            return this.message;
+        }
+    }
+
     /**
      * Livello di difficoltà della partita.
      */
@@ -20,9 +98,9 @@ public class Game {
      */
     private int round;
     /**
-     * True se la partita è stata avviata, false altrimenti.
+     * Stato attuale della partita.
      */
-    private boolean inGame;
+    private GameState state;
     /**
      * Nome della difficoltà.
      */
@@ -31,6 +109,14 @@ public class Game {
      * Numero di tentativi.
      */
     private int attempts;
+    /**
+     * Minuti a disposizione per giocare, 0 se non è stato impostato un limite.
+     */
+    private int timeLimit;
+    /**
+     * Istante di inizio della partita, letto da {@link System#nanoTime()}.
+     */
+    private long startTime;
     /**
      * Difficoltà di default.
      */
@@ -59,18 +145,92 @@ public class Game {
      * Numero di tentativi massimo in difficoltà difficile.
      */
     public static final int HARD_ATTEMPTS = 10;
+    /**
+     * Nanosecondi in un minuto.
+     */
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+    /**
+     * Descrizione del gioco e lista dei comandi.
+     */
+    private static final String HELP = """
+                \nBenvenuto in BATTLESHIP!
+                Questo gioco consiste nel cercare di affondare le navi disposte automaticamente dal sistema, posizionate
+                in una griglia di default 10x10.
+                La griglia può essere ridimensionata (vedi /standard, /large, /extralarge).
+                Il giocatore vince se affonda tutte le navi prima di esaurire tutte le mosse disponibili.
+                Le navi totali da affondare sono 10 e sono di 4 tipi:
+                - Cacciatorpediniere: 4 esemplari
+                - Incrociatore: 3 esemplari
+                - Corazzata: 2 esemplari
+                - Portaerei: 1 esemplare
+                Il numero massimo di tentativi sbagliati dipende dal livello che si sceglie (facile/media/difficile):
+                Facile: 50 tentativi, Medio: 30 tentativi, Difficile: 10 tentativi.
+                Il numero massimo di tentativi si può impostare anche manualmente (vedi /facile, /medio, /difficile)
+                I comandi disponibili sono:
+                /gioca: inizia una nuova partita, l'applicazione imposta casualmente le navi e mostra la griglia vuota.
+                /esci: chiude l'applicazione.
+                /help o /h: mostra una descrizione del gioco e l'elenco dei comandi disponibili.
+                /facile o /facile numero: imposta a 50 o a numero il numero massimo di tentativi falliti.
+                /medio o /medio numero: imposta a 30 o a numero il numero massimo di tentativi falliti.
+                /difficile o /difficile numero: imposta a 10 o a numero il numero massimo di tentativi falliti.
+                /mostralivello: mostra il livello di gioco e il numero di massimo di tentativi falliti.
+                /mostranavi: mostra, per ogni tipo di nave, la dimensione e il numero di esemplari da affondare.
+                /svelagriglia: mostra la griglia con le navi posizionate.
+                /tentativi numero: imposta a numero il numero massimo di tentativi falliti.
+                /standard: imposta a 10x10 la dimensione della griglia (default).
+                /large: imposta a 18x18 la dimensione della griglia.
+                /extralarge: imposta a 26x26 la dimensione della griglia.
+                /tempo numero: imposta a numero il numero di minuti a disposizione per giocare.
+                /mostratempo: mostra il numero di minuti trascorsi nel gioco e il numero di minuti a disposizione.
+                /mostragriglia: mostra la griglia con le navi affondate e le sole parti già colpite.
+                /mostratentativi: mostra il numero di tentativi già effettuati e il numero di tentativi a disposizione.
+                /abbandona: rivela la griglia con le navi posizionate e termina la partita in corso.
+                """;
+    /**
+     * Dimensione iniziale del {@link #frame buffer di output}.
+     */
+    private static final int FRAME_SIZE = 512;
+    /**
+     * Buffer riutilizzato per comporre l'output di un comando prima di scriverlo.
+     * @see #flushFrame()
+     */
+    private byte[] frame = new byte[FRAME_SIZE];
+    /**
+     * Numero di byte validi nel {@link #frame buffer di output}.
+     */
+    private int frameLength;
+    /**
+     * Contatori e latenze dei comandi della partita, esposti tramite JMX.
+     */
+    private final GameMetrics metrics = new GameMetrics(this);
+    /**
+     * Tempo trascorso ad attendere la conferma dell'utente durante l'ultimo comando,
+     * escluso dalla latenza registrata nelle {@link #metrics metriche}.
+     * @see #readConfirmation()
+     */
+    private long confirmationNanos;
+    /**
+     * Valore restituito da {@link #parseNumber(String)} se l'argomento non è un numero.
+     */
+    private static final int NOT_A_NUMBER = -1;
+    /**
+     * Valore restituito da {@link #parseNumber(String)} se il numero non è rappresentabile.
+     */
+    private static final int OUT_OF_RANGE = -2;
 
     /**
-     * Costruttore che inizializza {@link #round}, {@link #inGame}, e imposta
+     * Costruttore che inizializza {@link #round}, {@link #state}, e imposta
      * {@link #levelDifficulty}, {@link #attempts}, {@link #nameDifficulty}
      * a un livello di difficoltà di default.
      */
     public Game() {
         this.round = 0;
-        this.inGame = false;
+        this.state = GameState.NOT_STARTED;
         this.levelDifficulty = DEFAULT_DIFFICULTY;
         this.attempts = EASY_DIFFICULTY;
         this.nameDifficulty = "Facile";
+        this.timeLimit = 0;
+        this.startTime = 0;
     }
 
     /**
@@ -131,20 +291,57 @@ public class Game {
     }
 
     /**
-     * Imposta lo {@link #inGame stato} della partita.
-     * @param gameStatus Stato della partita
+     * Restituisce lo {@link #state stato} attuale della partita.
+     * @return Stato della partita
+     */
+    public GameState getState() {
+        return this.state;
+    }
+
+    /**
+     * Imposta lo {@link #state stato} della partita.
+     * @param gameState Stato della partita
+     */
+    public void setState(final GameState gameState) {
+        this.state = gameState;
+    }
+
+    /**
+     * Avvia o chiude la partita aggiornandone lo {@link #state stato}.
+     * @param gameStatus True per avviare la partita, false per chiuderla
      */
     public void setInGame(final boolean gameStatus) {
-        this.inGame = gameStatus;
+        if (gameStatus) {
+            this.state = levelIsSet() ? GameState.IN_PLAY : GameState.CHOOSING_DIFFICULTY;
+        } else {
+            this.state = GameState.NOT_STARTED;
+        }
+    }
+
+    /**
+     * Restituisce le {@link #metrics metriche} della partita.
+     * @return Metriche della partita
+     */
+    public GameMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Verifica se la partita è terminata, con una vittoria, una sconfitta o un abbandono.
+     * @return true se la partita è terminata, false altrimenti
+     * @see #state
+     */
+    public boolean isFinished() {
+        return this.state == GameState.WON || this.state == GameState.LOST || this.state == GameState.ABANDONED;
     }
 
     /**
      * Verifica se la partita è stata avviata o meno.
-     * @return True se la partita è stata avviata, false altrimenti
-     * @see #inGame
+     * @return True se la partita è stata avviata e non è ancora terminata, false altrimenti
+     * @see #state
      */
     public boolean getInGame() {
-        return this.inGame;
+        return this.state == GameState.CHOOSING_DIFFICULTY || this.state == GameState.IN_PLAY;
     }
     /**
      * Verifica se il {@link #levelDifficulty livello di difficoltà} è stato impostato.
@@ -195,42 +392,8 @@ public class Game {
      * Mostra a video la descrizione del gioco e una lista di comandi.
      */
     public void printHelp() {
-        String help = """
-                \nBenvenuto in BATTLESHIP!
-                Questo gioco consiste nel cercare di affondare le navi disposte automaticamente dal sistema, posizionate
-                in una griglia di default 10x10.
-                La griglia può essere ridimensionata (vedi /standard, /large, /extralarge).
-                Il giocatore vince se affonda tutte le navi prima di esaurire tutte le mosse disponibili.
-                Le navi totali da affondare sono 10 e sono di 4 tipi:
-                - Cacciatorpediniere: 4 esemplari
-                - Incrociatore: 3 esemplari
-                - Corazzata: 2 esemplari
-                - Portaerei: 1 esemplare
-                Il numero massimo di tentativi sbagliati dipende dal livello che si sceglie (facile/media/difficile):
-                Facile: 50 tentativi, Medio: 30 tentativi, Difficile: 10 tentativi.
-                Il numero massimo di tentativi si può impostare anche manualmente (vedi /facile, /medio, /difficile)
-                I comandi disponibili sono:
-                /gioca: inizia una nuova partita, l'applicazione imposta casualmente le navi e mostra la griglia vuota.
-                /esci: chiude l'applicazione.
-                /help o /h: mostra una descrizione del gioco e l'elenco dei comandi disponibili.
-                /facile o /facile numero: imposta a 50 o a numero il numero massimo di tentativi falliti.
-                /medio o /medio numero: imposta a 30 o a numero il numero massimo di tentativi falliti.
-                /difficile o /difficile numero: imposta a 10 o a numero il numero massimo di tentativi falliti.
-                /mostralivello: mostra il livello di gioco e il numero di massimo di tentativi falliti.
-                /mostranavi: mostra, per ogni tipo di nave, la dimensione e il numero di esemplari da affondare.
-                /svelagriglia: mostra la griglia con le navi posizionate.
-                /tentativi numero: imposta a numero il numero massimo di tentativi falliti.
-                /standard: imposta a 10x10 la dimensione della griglia (default).
-                /large: imposta a 18x18 la dimensione della griglia.
-                /extralarge: imposta a 26x26 la dimensione della griglia.
-                /tempo numero: imposta a numero il numero di minuti a disposizione per giocare.
-                /mostratempo: mostra il numero di minuti trascorsi nel gioco e il numero di minuti a disposizione.
-                /mostragriglia: mostra la griglia con le navi affondate e le sole parti già colpite.
-                /mostratentativi: mostra il numero di tentativi già effettuati e il numero di tentativi a disposizione.
-                /abbandona: rivela la griglia con le navi posizionate e termina la partita in corso.
-                """;
-
-        System.out.println(help);
+        System.out.write(EncodedText.HELP_BYTES, 0, EncodedText.HELP_BYTES.length);
+        System.out.flush();
     }
 
     /**
@@ -255,41 +418,24 @@ public class Game {
      * e il numero del turno, siccome ogni turno corrisponde ad un tentativo effettuato.
      * N.B.: Si sottrae 1 al risultato perche' il turno corrente non si calcola siccome
      * solo un turno dichiarato completato conta come tentativo commesso!
-     * @return Tentativi rimanenti.
-     * @throws IllegalDifficultyException Se la difficolta' impostata non corrisponde ad un valore legale
-     * allora viene lanciata un'eccezione.
+     * @return Tentativi rimanenti, -1 se il livello di difficolta' non e' stato impostato.
+     * @throws IllegalDifficultyException Non viene piu' lanciata: resta dichiarata solo per
+     * compatibilita' con i chiamanti che la gestiscono, finche' App non sara' aggiornata.
      */
     public int getRemainingAttempts() throws IllegalDifficultyException {
-        int out = -1;
-        try {
-            switch (getLevelDifficulty()) {
-                case EASY_DIFFICULTY -> {
-                    if (getAttempts() == EASY_ATTEMPTS) {
-                        out = EASY_ATTEMPTS - getDoneAttempts();
-                    } else {
-                        out = getAttempts() - getDoneAttempts();
-                    }
-                }
-                case MEDIUM_DIFFICULTY -> {
-                    if (getAttempts() == MEDIUM_ATTEMPTS) {
-                        out = MEDIUM_ATTEMPTS - getDoneAttempts();
-                    } else {
-                        out = getAttempts() - getDoneAttempts();
-                    }
-                }
-                case HARD_DIFFICULTY -> {
-                    if (getAttempts() == HARD_ATTEMPTS) {
-                        out = HARD_ATTEMPTS - getDoneAttempts();
-                    } else {
-                        out = getAttempts() - getDoneAttempts();
-                    }
-                }
-                default -> throw new IllegalDifficultyException();
-            }
-        } catch (IllegalDifficultyException exc) {
-            exc.printStackTrace();
+        return remainingAttempts();
+    }
+
+    /**
+     * Calcola i tentativi rimanenti senza dichiarare eccezioni.
+     * @return Tentativi rimanenti, -1 se il livello di difficolta' non e' stato impostato.
+     * @see #getRemainingAttempts()
+     */
+    int remainingAttempts() {
+        if (!levelIsSet()) {
+            return -1;
         }
-        return out;
+        return getAttempts() - getDoneAttempts();
     }
 
     /**
@@ -302,102 +448,251 @@ public class Game {
 
     /**
      * Mostra i tentativi massimi.
-     * @throws IllegalDifficultyException Se {@link #getRemainingAttempts()}
-     * lancia un'eccezione.
+     * @throws IllegalDifficultyException Non viene piu' lanciata: resta dichiarata solo per
+     * compatibilita' con i chiamanti che la gestiscono, finche' App non sara' aggiornata.
      */
     public void showAttempts() throws IllegalDifficultyException {
+        printAttempts();
+    }
+
+    /**
+     * Mostra i tentativi massimi, rimasti ed effettuati senza dichiarare eccezioni.
+     * @see #showAttempts()
+     */
+    private void printAttempts() {
         String maxAttempts = "Tentativi massimi: "
                 + getAttempts()
                 + "\nTentativi rimasti: "
-                + getRemainingAttempts()
+                + remainingAttempts()
                 + "\nTentativi effettuati: "
                 + getDoneAttempts();
         System.out.println(maxAttempts);
     }
 
+    /**
+     * Imposta il {@link #timeLimit numero di minuti} a disposizione per giocare.
+     * @param minutes Minuti a disposizione
+     */
+    public void setTimeLimit(final int minutes) {
+        this.timeLimit = minutes;
+    }
+
+    /**
+     * Restituisce il {@link #timeLimit numero di minuti} a disposizione per giocare.
+     * @return Minuti a disposizione, 0 se non è stato impostato un limite
+     */
+    public int getTimeLimit() {
+        return this.timeLimit;
+    }
+
+    /**
+     * Verifica se è stato impostato un {@link #timeLimit limite di tempo}.
+     * @return true se il limite di tempo è stato impostato, false altrimenti
+     */
+    public boolean timeIsSet() {
+        return this.timeLimit > 0;
+    }
+
+    /**
+     * Restituisce i minuti trascorsi dall'{@link #startTime inizio della partita}.
+     * N.B.: si usa {@link System#nanoTime()} perche' non risente delle modifiche all'orologio di sistema.
+     * @return Minuti trascorsi, 0 se la partita non è stata avviata
+     */
+    public long getElapsedMinutes() {
+        if (!getInGame()) {
+            return 0;
+        }
+        return (System.nanoTime() - this.startTime) / NANOS_PER_MINUTE;
+    }
+
+    /**
+     * Restituisce i minuti rimasti prima dello scadere del {@link #timeLimit limite di tempo}.
+     * @return Minuti rimasti, mai negativi
+     */
+    public long getRemainingMinutes() {
+        return Math.max(0, getTimeLimit() - getElapsedMinutes());
+    }
+
+    /**
+     * Verifica se il {@link #timeLimit limite di tempo} della partita in corso è scaduto.
+     * N.B.: la scadenza viene controllata da {@link #play()} ogni volta che arriva un comando,
+     * non da un timer: la lettura di {@link App#getInput()} è bloccante e non può essere interrotta,
+     * per cui un timer non potrebbe chiudere la partita prima del comando successivo
+     * e dovrebbe modificarne lo stato da un altro thread. Un giocatore inattivo, quindi,
+     * scopre di aver perso solo quando inserisce il comando successivo.
+     * @return true se il tempo a disposizione è terminato, false altrimenti
+     */
+    public boolean timeIsOver() {
+        return timeIsSet() && getInGame() && getElapsedMinutes() >= getTimeLimit();
+    }
+
+    /**
+     * Mostra i minuti trascorsi e, se impostato, i minuti ancora a disposizione.
+     */
+    public void showTime() {
+        String time = "Minuti trascorsi: " + getElapsedMinutes();
+        if (timeIsSet()) {
+            time += "\nMinuti rimasti: " + getRemainingMinutes();
+        } else {
+            time += "\nNon hai impostato un limite di tempo";
+        }
+        System.out.println(time);
+    }
+
+    /**
+     * Imposta il {@link #timeLimit limite di tempo} letto dal comando /tempo numero.
+     * @param isSplitted True se il comando è diviso in due parti
+     * @param splitted Comando diviso in due parti
+     * @return Esito del comando
+     */
+    private CommandResult chooseTime(final boolean isSplitted, final String[] splitted) {
+        int minutes = isSplitted && splitted.length > 1 ? parseNumber(splitted[1]) : NOT_A_NUMBER;
+        if (minutes == NOT_A_NUMBER) {
+            return CommandResult.NOT_A_NUMBER;
+        } else if (minutes == OUT_OF_RANGE || minutes == 0) {
+            return CommandResult.INVALID_TIME;
+        }
+        setTimeLimit(minutes);
+        System.out.println("OK");
+        return CommandResult.DONE;
+    }
+
     /**
      * Questo metodo serve per iniziare una nuova partita,
      * posizionando casualmente in una {@link Grid griglia} le {@link Ship navi} da affondare,
      * e mostrando all'utente una griglia vuota.
-     * @see #setInGame(boolean) Impostare lo stato della partita
-     * @see #getInGame() Ottenere lo stato della partita
+     * @see #setState(GameState) Impostare lo stato della partita
+     * @see #getInGame() Verificare se la partita è in corso
      * @see Grid#showGrid() Mostrare la griglia di gioco
+     * @see GameMetrics Metriche dei comandi e del riempimento della griglia,
+     * registrate via JMX solo finché la partita è in corso
      */
     public void play() {
         if (!getInGame()) {
-            setInGame(true);
-            Grid userGrid = new Grid();     // griglia dell'utente
-            Grid gridToHit = new Grid();    // griglia con le navi da colpire
-            gridToHit.ensureRandomFill();   // riempie casualmente la griglia con le navi
-            String command;                 // comando inserito dall'utente
-            String[] splitted;              // comando diviso in due parti
-
-            System.out.println("Griglia giocatore: ");
-            userGrid.showGrid();
-
-            do {
-                System.out.println("Seleziona la difficoltà: ");
-                chooseDifficulty();
-            } while (!levelIsSet());
-
-            //System.out.println("Seleziona la taglia della griglia: ");
-            //choseGridSize(gridToHit);
-
-            do {
-                command = App.getInput();
-                boolean isSplitted = App.checkSplit(command);
-                splitted = App.getSplittedCommand(command);
-
-                if (!App.checkSplit(command)) {
-                    splitted[0] = command;
+            if (isFinished()) {
+                resetForNewGame();
+            }
+            setState(GameState.CHOOSING_DIFFICULTY);
+            this.metrics.register();
+            try {
+                this.startTime = System.nanoTime();
+                Grid userGrid = new Grid();     // griglia dell'utente
+                Grid gridToHit = new Grid();    // griglia con le navi da colpire
+                long fillStart = System.nanoTime();
+                gridToHit.ensureRandomFill();   // riempie casualmente la griglia con le navi
+                this.metrics.recordFill(System.nanoTime() - fillStart);
+                String command;                 // comando inserito dall'utente
+                String[] splitted;              // comando diviso in due parti
+
+                System.out.println("Griglia giocatore: ");
+                userGrid.showGrid();
+
+                while (!levelIsSet()) {
+                    System.out.println("Seleziona la difficoltà: ");
+                    chooseDifficulty();
                 }
+                setState(GameState.IN_PLAY);
+
+                //System.out.println("Seleziona la taglia della griglia: ");
+                //choseGridSize(gridToHit);
 
-                //executes the different commands
-                switch (splitted[0]) {
-                    case "/help" -> printHelp();
-                    case "/esci" -> exit();
-                    case "/mostralivello" -> showLevel();
-                    case "/mostranavi" -> showShips();
-                    case "/svelagriglia" -> {
-                        try {
-                            if (!getInGame()) {
-                                throw new SvelaGrigliaException();
-                            }
-                            //se game.getInGame()
-                            gridToHit.showGrid();
-                        } catch (SvelaGrigliaException exc) {
-                            exc.printStackTrace();
-                        }
+                do {
+                    command = App.getInput();
+                    boolean isSplitted = App.checkSplit(command);
+                    splitted = App.getSplittedCommand(command);
+
+                    if (!isSplitted) {
+                        splitted[0] = command;
                     }
-                    case "/mostratentativi" -> {
-                        try {
-                            if (!getInGame()) {
-                                throw new InexistentGameException();
-                            } else if (getLevelDifficulty() == -1) {
-                                throw new IllegalDifficultyException();
-                            }
-                            //se game.getInGame() oppure game.getLevelDifficulty() != -1
-                            showAttempts();
-                        } catch (InexistentGameException | IllegalDifficultyException exc) {
-                            exc.printStackTrace();
-                        }
+
+                    if (timeIsOver()) {
+                        System.out.println("Tempo scaduto! La partita e' terminata.");
+                        System.out.println("Il comando " + command + " non e' stato eseguito.");
+                        gridToHit.showGrid();
+                        setState(GameState.LOST);
+                        continue;
                     }
-                    //case "/mostratempo" -> showTime();
-                    default -> System.out.println("Comando non valido.");
-                }
 
-            } while (!splitted[0].equals("/esci"));
+                    this.confirmationNanos = 0;
+                    long commandStart = System.nanoTime();
+                    CommandResult result = executeCommand(isSplitted, splitted, gridToHit);
+                    this.metrics.recordCommand(splitted[0],
+                            System.nanoTime() - commandStart - this.confirmationNanos);
+                    if (result.getMessage() != null) {
+                        System.out.println(result.getMessage());
+                    }
+                } while (getInGame());
+            } finally {
+                this.metrics.unregister();
+            }
         } else {
             System.out.println("Una partita e' gia' in corso!");
         }
     }
 
+    /**
+     * Riporta ai valori di default {@link #levelDifficulty difficoltà}, {@link #attempts tentativi},
+     * {@link #round turno} e {@link #timeLimit limite di tempo}, per iniziare una nuova partita
+     * dopo che la precedente è terminata.
+     * @see #isFinished()
+     */
+    private void resetForNewGame() {
+        this.round = 0;
+        this.levelDifficulty = DEFAULT_DIFFICULTY;
+        this.attempts = EASY_DIFFICULTY;
+        this.nameDifficulty = "Facile";
+        this.timeLimit = 0;
+    }
+
+    /**
+     * Esegue un comando della partita in corso, verificando prima che
+     * lo {@link #state stato} della partita lo consenta.
+     * @param isSplitted True se il comando è diviso in due parti
+     * @param splitted Comando diviso in due parti
+     * @param gridToHit Griglia con le navi da colpire
+     * @return Esito del comando
+     */
+    private CommandResult executeCommand(final boolean isSplitted, final String[] splitted, final Grid gridToHit) {
+        switch (splitted[0]) {
+            case "/help" -> printHelp();
+            case "/esci" -> exit();
+            case "/mostralivello" -> showLevel();
+            case "/mostranavi" -> showShips();
+            case "/svelagriglia" -> {
+                if (getState() != GameState.IN_PLAY) {
+                    return CommandResult.NO_GAME;
+                }
+                gridToHit.showGrid();
+            }
+            case "/mostratentativi" -> {
+                if (getState() != GameState.IN_PLAY) {
+                    return CommandResult.NO_GAME;
+                }
+                printAttempts();
+            }
+            case "/abbandona" -> {
+                if (getState() != GameState.IN_PLAY) {
+                    return CommandResult.NO_GAME;
+                }
+                abandon(gridToHit);
+            }
+            case "/tempo" -> {
+                return chooseTime(isSplitted, splitted);
+            }
+            case "/mostratempo" -> showTime();
+            default -> {
+                return CommandResult.INVALID_COMMAND;
+            }
+        }
+        return CommandResult.DONE;
+    }
+
     /**
      * Questo metodo chiede al giocatore di selezionare la difficoltà della partita.
      * @see #setDifficulty(int, int) Impostare la difficolta' della partita
      * @see App#checkSplit(String) Controllare se il comando inserito è diviso in due parti
      * @see App#getSplittedCommand(String) Ottenere il comando diviso in due parti
-     * @see App#isNumber(String[]) Controllare se la seconda parte del comando e' un numero
+     * @see #parseNumber(String) Convertire la seconda parte del comando in un numero
      */
     private void chooseDifficulty() {
         String command;
@@ -407,75 +702,80 @@ public class Game {
         boolean isSplitted = App.checkSplit(command);
         splitted = App.getSplittedCommand(command);
 
-        if (!App.checkSplit(command)) {
+        if (!isSplitted) {
             splitted[0] = command;
         }
 
         switch (splitted[0]) {
-            case "/facile" -> {
-                if (isSplitted) {
-                    try {
-                        if (App.isNumber(splitted)) {
-                            int inputAttempts = Integer.parseInt(splitted[1]);
-                            setDifficulty(Game.EASY_DIFFICULTY, inputAttempts);
-                        } else {
-                            System.out.println("Dopo il comando inserire un numero.");
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Inserisci un numero di tentativi valido dopo lo spazio.");
-                    }
-                } else {
-                    setDifficulty(Game.EASY_DIFFICULTY, Game.EASY_ATTEMPTS);
-                }
-            }
-            case "/medio" -> {
-                if (isSplitted) {
-                    try {
-                        if (App.isNumber(splitted)) {
-                            int inputAttempts = Integer.parseInt(splitted[1]);
-                            setDifficulty(Game.MEDIUM_DIFFICULTY, inputAttempts);
-                        } else {
-                            System.out.println("Dopo il comando inserire un numero.");
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Inserisci un numero di tentativi valido dopo lo spazio.");
-                    }
-                } else {
-                    setDifficulty(Game.MEDIUM_DIFFICULTY, Game.MEDIUM_ATTEMPTS);
-                }
+            case "/facile" -> applyDifficulty(Game.EASY_DIFFICULTY, Game.EASY_ATTEMPTS, isSplitted, splitted);
+            case "/medio" -> applyDifficulty(Game.MEDIUM_DIFFICULTY, Game.MEDIUM_ATTEMPTS, isSplitted, splitted);
+            case "/difficile" -> applyDifficulty(Game.HARD_DIFFICULTY, Game.HARD_ATTEMPTS, isSplitted, splitted);
+            default -> System.out.println("Comando non valido.");
+        }
+    }
+
+    /**
+     * Imposta la difficoltà scelta usando i tentativi indicati dopo il comando,
+     * oppure quelli di default se il comando non ha argomenti.
+     * @param gameLevelDifficulty Livello di difficoltà scelto
+     * @param defaultAttempts Tentativi da usare se il comando non ha argomenti
+     * @param isSplitted True se il comando è diviso in due parti
+     * @param splitted Comando diviso in due parti
+     */
+    private void applyDifficulty(final int gameLevelDifficulty, final int defaultAttempts,
+                                 final boolean isSplitted, final String[] splitted) {
+        if (!isSplitted) {
+            setDifficulty(gameLevelDifficulty, defaultAttempts);
+            return;
+        }
+        int inputAttempts = splitted.length > 1 ? parseNumber(splitted[1]) : NOT_A_NUMBER;
+        if (inputAttempts == NOT_A_NUMBER) {
+            System.out.println("Dopo il comando inserire un numero.");
+        } else if (inputAttempts == OUT_OF_RANGE) {
+            System.out.println("Inserisci un numero di tentativi valido dopo lo spazio.");
+        } else {
+            setDifficulty(gameLevelDifficulty, inputAttempts);
+        }
+    }
+
+    /**
+     * Converte in intero il numero inserito dopo il comando,
+     * senza passare da {@link Integer#parseInt(String)} e dalle sue eccezioni.
+     * @param token Seconda parte del comando
+     * @return Il numero letto, {@link #NOT_A_NUMBER} se il testo non è composto da sole cifre,
+     * {@link #OUT_OF_RANGE} se il numero non è rappresentabile come intero
+     */
+    private static int parseNumber(final String token) {
+        final int radix = 10;
+        int len = token.length();
+        if (len == 0) {
+            return NOT_A_NUMBER;
+        }
+        long value = 0;
+        for (int i = 0; i < len; i++) {
+            int digit = token.charAt(i) - '0';
+            if (digit < 0 || digit >= radix) {
+                return NOT_A_NUMBER;
             }
-            case "/difficile" -> {
-                if (isSplitted) {
-                    try {
-                        if (App.isNumber(splitted)) {
-                            int inputAttempts = Integer.parseInt(splitted[1]);
-                            setDifficulty(Game.HARD_DIFFICULTY, inputAttempts);
-                        } else {
-                            System.out.println("Dopo il comando inserire un numero.");
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Inserisci un numero di tentativi valido dopo lo spazio.");
-                    }
-                } else {
-                    setDifficulty(Game.HARD_DIFFICULTY, Game.HARD_ATTEMPTS);
-                }
+            if (value <= Integer.MAX_VALUE) {
+                value = value * radix + digit;
             }
-            default -> System.out.println("Comando non valido.");
         }
+        return value > Integer.MAX_VALUE ? OUT_OF_RANGE : (int) value;
     }
 
     /**
      * Esce dal gioco e restituisce il controllo al sistema operativo.
-     * @see java.util.Scanner#Scanner(java.io.InputStream)
+     * La conferma viene letta dallo stesso input dei comandi.
+     * @see #readConfirmation() Leggere la risposta dell'utente
      * @see #equals(Object)
      * @see System#exit(int)
      */
     public void exit() {
-        Scanner in = new Scanner(System.in, "UTF-8");
         boolean flag = true;
         while (flag) {
             System.out.println("Sei sicuro di voler uscire dal gioco? (y/n)");
-            String userInput = in.nextLine();
+            String userInput = readConfirmation();
             if (userInput.equals("y")) {
                 System.out.println("A presto!");
                 System.exit(0);
@@ -488,27 +788,194 @@ public class Game {
         }
      }
 
+    /**
+     * Chiede conferma e, se il giocatore accetta, rivela la griglia con le navi posizionate
+     * e termina la partita in corso impostandone lo {@link #state stato} ad abbandonata.
+     * @param gridToHit Griglia con le navi da colpire
+     * @see #readConfirmation() Leggere la risposta dell'utente
+     */
+    private void abandon(final Grid gridToHit) {
+        boolean flag = true;
+        while (flag) {
+            System.out.println("Sei sicuro di voler abbandonare la partita? (y/n)");
+            String userInput = readConfirmation();
+            if (userInput.equals("y")) {
+                gridToHit.showGrid();
+                setState(GameState.ABANDONED);
+                System.out.println("Hai abbandonato la partita.");
+                flag = false;
+            } else if (userInput.equals("n")) {
+                System.out.println("Non hai abbandonato la partita.");
+                flag = false;
+            } else {
+                System.out.println("Inserire un valore di conferma valido! (y/n)");
+            }
+        }
+    }
+
+    /**
+     * Legge la risposta dell'utente a una richiesta di conferma (y/n),
+     * sommando l'attesa a {@link #confirmationNanos} perché non sia misurata come latenza del comando.
+     * @return Risposta dell'utente
+     * @see App#getInput()
+     */
+    private String readConfirmation() {
+        long waitStart = System.nanoTime();
+        String userInput = App.getInput();
+        this.confirmationNanos += System.nanoTime() - waitStart;
+        return userInput;
+    }
+
     /**
      * Mostra a video le {@link Ship navi} rimanenti per ogni categoria di nave.
+     * La tabella viene composta nel {@link #frame buffer di output} e scritta con una sola operazione.
      * @see java.util.ArrayList
      * @see Grid#getAllShips()
      */
     public void showShips() {
-
         ArrayList<Ship[]> allShips = Grid.getAllShips();
-        String displayShips = "";
-        int i = 0;
         final int first = 0;
 
-        displayShips += "|     Categoria      |     |   Dimensione  |     | Navi-rimanenti |\n";
-        displayShips += "  PortaAerei:               [+][+][+][+][+]               "
-                + allShips.get(i)[first].getShipNumber() + "\n"; i++;
-        displayShips += "  Corazzata:                [+][+][+][+]                  "
-                + allShips.get(i)[first].getShipNumber() + "\n"; i++;
-        displayShips += "  Incrociatore:             [+][+][+]                     "
-                + allShips.get(i)[first].getShipNumber() + "\n"; i++;
-        displayShips += "  Cacciatorpediniere:       [+][+]                        "
-                + allShips.get(i)[first].getShipNumber() + "\n";
-        System.out.print(displayShips);
+        this.frameLength = 0;
+        appendFrame(EncodedText.SHIPS_HEADER_BYTES);
+        for (int i = 0; i < EncodedText.SHIPS_ROWS_BYTES.length; i++) {
+            appendFrame(EncodedText.SHIPS_ROWS_BYTES[i]);
+            appendFrame(allShips.get(i)[first].getShipNumber());
+            appendFrame((byte) '\n');
+        }
+        flushFrame();
+    }
+
+    /**
+     * Accoda dei byte al {@link #frame buffer di output}, ingrandendolo se necessario.
+     * @param bytes Byte da accodare
+     */
+    private void appendFrame(final byte[] bytes) {
+        ensureFrameCapacity(bytes.length);
+        System.arraycopy(bytes, 0, this.frame, this.frameLength, bytes.length);
+        this.frameLength += bytes.length;
+    }
+
+    /**
+     * Accoda un singolo byte al {@link #frame buffer di output}.
+     * @param b Byte da accodare
+     */
+    private void appendFrame(final byte b) {
+        ensureFrameCapacity(1);
+        this.frame[this.frameLength++] = b;
+    }
+
+    /**
+     * Accoda le cifre decimali di un numero al {@link #frame buffer di output}
+     * senza creare stringhe intermedie.
+     * @param number Numero da accodare
+     */
+    private void appendFrame(final int number) {
+        final int radix = 10;
+        final int maxDigits = 11;
+        ensureFrameCapacity(maxDigits);
+        long value = number;
+        if (value < 0) {
+            this.frame[this.frameLength++] = '-';
+            value = -value;
+        }
+        int start = this.frameLength;
+        do {
+            this.frame[this.frameLength++] = (byte) ('0' + value % radix);
+            value /= radix;
+        } while (value > 0);
+        for (int i = start, j = this.frameLength - 1; i < j; i++, j--) {
+            byte tmp = this.frame[i];
+            this.frame[i] = this.frame[j];
+            this.frame[j] = tmp;
+        }
+    }
+
+    /**
+     * Garantisce che il {@link #frame buffer di output} possa contenere altri byte.
+     * @param extra Numero di byte da aggiungere
+     */
+    private void ensureFrameCapacity(final int extra) {
+        if (this.frameLength + extra > this.frame.length) {
+            this.frame = Arrays.copyOf(this.frame, Math.max(this.frame.length * 2, this.frameLength + extra));
+        }
+    }
+
+    /**
+     * Scrive il contenuto del {@link #frame buffer di output} su {@link System#out} con una sola operazione.
+     */
+    private void flushFrame() {
+        System.out.write(this.frame, 0, this.frameLength);
+        System.out.flush();
+        this.frameLength = 0;
+    }
+
+    /**
+     * Testi statici già codificati per {@link System#out}.
+     * Sono preparati solo al primo accesso, quando la JVM inizializza questa classe,
+     * e non all'avvio dell'applicazione insieme a {@link Game}.
+     */
+    private static final class EncodedText {
+        /**
+         * Charset con cui {@link System#out} codifica il testo, usato anche per i testi già codificati.
+         * @see #outputCharset()
+         */
+        static final Charset OUTPUT_CHARSET = outputCharset();
+        /**
+         * {@link Game#HELP Descrizione del gioco} già codificata, scritta su {@link System#out} con una sola operazione.
+         * @see Game#printHelp()
+         */
+        static final byte[] HELP_BYTES = encode(HELP + System.lineSeparator());
+        /**
+         * Intestazione della tabella delle navi rimanenti, già codificata.
+         * @see Game#showShips()
+         */
+        static final byte[] SHIPS_HEADER_BYTES =
+                encode("|     Categoria      |     |   Dimensione  |     | Navi-rimanenti |\n");
+        /**
+         * Etichetta e dimensione di ogni categoria di nave, già codificate,
+         * nello stesso ordine di {@link Grid#getAllShips()}.
+         * @see Game#showShips()
+         */
+        static final byte[][] SHIPS_ROWS_BYTES = {
+            encode("  PortaAerei:               [+][+][+][+][+]               "),
+            encode("  Corazzata:                [+][+][+][+]                  "),
+            encode("  Incrociatore:             [+][+][+]                     "),
+            encode("  Cacciatorpediniere:       [+][+]                        ")
+        };
+
+        /**
+         * Codifica un testo statico nei byte da scrivere su {@link System#out}.
+         * @param text Testo da codificare
+         * @return Byte del testo nel {@link #OUTPUT_CHARSET charset di output}
+         */
+        private static byte[] encode(final String text) {
+            return text.getBytes(OUTPUT_CHARSET);
+        }
+
+        /**
+         * Individua il charset usato da {@link System#out}, così che i testi già codificati
+         * appaiano come quelli scritti con {@link java.io.PrintStream#println(String)}.
+         * N.B.: la JVM lo indica in "stdout.encoding" (dalla versione 19) o in "sun.stdout.encoding"
+         * se l'output è una console; altrimenti System.out usa il charset di default.
+         * @return Charset di {@link System#out}
+         */
+        private static Charset outputCharset() {
+            String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+            if (name != null) {
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException exc) {
+                    // nome non valido o non supportato: si usa il charset di default
+                }
+            }
+            return Charset.defaultCharset();
+        }
+
+        /**
+         * Classe di sole costanti, non istanziabile.
+         */
+        private EncodedText() {
+        }
     }
 }